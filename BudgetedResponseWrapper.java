@@ -0,0 +1,314 @@
+package demo.api;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * レスポンスをそのままクライアントへ書き出しつつ、{@link CaptureBudget} の範囲で Body の先頭をコピーするラッパー.
+ *
+ * <p>
+ * {@code ContentCachingResponseWrapper} と違い Body 全体をヒープに溜めないため、キャプチャを打ち切っても応答には影響しない.
+ */
+public class BudgetedResponseWrapper extends HttpServletResponseWrapper {
+
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private static final byte[] EMPTY = new byte[0];
+
+  private final CaptureBudget budget;
+  private final int limit;
+
+  private byte[] captured = EMPTY;
+  private int size;
+  private long reserved;
+  private boolean truncated;
+  private boolean released;
+  private long bytesWritten;
+
+  private ServletOutputStream outputStream;
+  private PrintWriter writer;
+
+  /**
+   * @param response 元のレスポンス
+   * @param budget   キャプチャ予算
+   * @param limit    キャプチャする Body の最大バイト数（0 の場合はバイト数のみ数える）
+   */
+  public BudgetedResponseWrapper(HttpServletResponse response, CaptureBudget budget, int limit) {
+    super(response);
+    this.budget = budget;
+    this.limit = limit;
+  }
+
+  @Override
+  public ServletOutputStream getOutputStream() throws IOException {
+    if (outputStream == null) {
+      outputStream = new TeeOutputStream(super.getOutputStream());
+    }
+    return outputStream;
+  }
+
+  @Override
+  public PrintWriter getWriter() throws IOException {
+    if (writer == null) {
+      writer = new TeeWriter(super.getWriter(), Charset.forName(getCharacterEncoding()));
+    }
+    return writer;
+  }
+
+  @Override
+  public void resetBuffer() {
+    super.resetBuffer();
+    size = 0;
+    truncated = false;
+    bytesWritten = 0;
+  }
+
+  @Override
+  public void reset() {
+    super.reset();
+    size = 0;
+    truncated = false;
+    bytesWritten = 0;
+  }
+
+  /**
+   * @return キャプチャした Body（先頭 {@code limit} バイトまで）
+   */
+  public byte[] getContentAsByteArray() {
+    return Arrays.copyOf(captured, size);
+  }
+
+  /**
+   * @return Body の一部しかキャプチャできなかった場合 true
+   */
+  public boolean isTruncated() {
+    return truncated;
+  }
+
+  /**
+   * @return 書き出したバイト数（Writer 経由で打ち切り後は文字数で概算）
+   */
+  public long getBytesWritten() {
+    return bytesWritten;
+  }
+
+  /**
+   * キャプチャバッファを解放し、予算に返却する. 以降の書き込みは転送のみでキャプチャしない.
+   */
+  public void release() {
+    released = true;
+    captured = EMPTY;
+    size = 0;
+    budget.release(reserved);
+    reserved = 0;
+  }
+
+  private void capture(byte[] b, int off, int len) {
+    bytesWritten += len;
+    if (!isCapturing() || len <= 0) {
+      return;
+    }
+    int accepted = Math.min(len, limit - size);
+    if (accepted < len) {
+      truncated = true;
+    }
+    if (!ensureCapacity(size + accepted)) {
+      // 予算不足: 確保済みの範囲までで打ち切る
+      accepted = captured.length - size;
+      truncated = true;
+      budget.recordTruncated();
+    }
+    System.arraycopy(b, off, captured, size, accepted);
+    size += accepted;
+  }
+
+  private boolean isCapturing() {
+    return !released && !truncated;
+  }
+
+  private boolean ensureCapacity(int required) {
+    if (required <= captured.length) {
+      return true;
+    }
+    int capacity = (int) Math.min(limit, Math.max(required, Math.max(INITIAL_CAPACITY, (long) captured.length * 2)));
+    if (!budget.tryAcquire(capacity - captured.length)) {
+      // 倍の容量が確保できなくても、必要な分だけなら確保できる場合がある
+      if (capacity == required || !budget.tryAcquire(required - captured.length)) {
+	return false;
+      }
+      capacity = required;
+    }
+    reserved += capacity - captured.length;
+    captured = Arrays.copyOf(captured, capacity);
+    return true;
+  }
+
+  private final class TeeOutputStream extends ServletOutputStream {
+    private final ServletOutputStream delegate;
+    private final byte[] single = new byte[1];
+
+    private TeeOutputStream(ServletOutputStream delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      delegate.write(b);
+      single[0] = (byte) b;
+      capture(single, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      delegate.write(b, off, len);
+      capture(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      delegate.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      delegate.close();
+    }
+
+    @Override
+    public boolean isReady() {
+      return delegate.isReady();
+    }
+
+    @Override
+    public void setWriteListener(WriteListener writeListener) {
+      delegate.setWriteListener(writeListener);
+    }
+  }
+
+  /**
+   * 委譲先の Writer に書き込みつつキャプチャする.
+   *
+   * <p>
+   * PrintWriter/Writer の既定実装は synchronized (lock) 内で委譲先に書き込むため、ソケット待ちの間キャリアを固定する.
+   * ContentCachingResponseWrapper の ResponsePrintWriter と同様に PrintWriter を直接継承し、
+   * write/println/format（printf も format 経由）をすべてロックなしで上書きする.
+   */
+  private final class TeeWriter extends PrintWriter {
+    private final PrintWriter delegate;
+    private final Charset charset;
+
+    private TeeWriter(PrintWriter delegate, Charset charset) {
+      super(delegate);
+      this.delegate = delegate;
+      this.charset = charset;
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) {
+      delegate.write(cbuf, off, len);
+      if (!isCapturing()) {
+	bytesWritten += len;
+	return;
+      }
+      ByteBuffer encoded = charset.encode(CharBuffer.wrap(cbuf, off, len));
+      capture(encoded.array(), encoded.arrayOffset() + encoded.position(), encoded.remaining());
+    }
+
+    @Override
+    public void write(String str, int off, int len) {
+      char[] chars = new char[len];
+      str.getChars(off, off + len, chars, 0);
+      write(chars, 0, len);
+    }
+
+    @Override
+    public void write(int c) {
+      write(new char[] { (char) c }, 0, 1);
+    }
+
+    @Override
+    public void println() {
+      // 既定実装は lock を取り、委譲先へ直接書き込む（キャプチャされない）
+      write(System.lineSeparator());
+    }
+
+    // println(x) / format は既定実装が synchronized (lock) 内で print と println を呼ぶため、ロックなしで上書きする
+    // （print(x) は write(String) を呼ぶだけでロックを取らない）
+
+    @Override
+    public void println(boolean x) {
+      println(String.valueOf(x));
+    }
+
+    @Override
+    public void println(char x) {
+      println(String.valueOf(x));
+    }
+
+    @Override
+    public void println(int x) {
+      println(String.valueOf(x));
+    }
+
+    @Override
+    public void println(long x) {
+      println(String.valueOf(x));
+    }
+
+    @Override
+    public void println(float x) {
+      println(String.valueOf(x));
+    }
+
+    @Override
+    public void println(double x) {
+      println(String.valueOf(x));
+    }
+
+    @Override
+    public void println(char[] x) {
+      println(String.valueOf(x));
+    }
+
+    @Override
+    public void println(Object x) {
+      println(String.valueOf(x));
+    }
+
+    @Override
+    public void println(String x) {
+      write(x + System.lineSeparator());
+    }
+
+    @Override
+    public PrintWriter format(String format, Object... args) {
+      write(String.format(format, args));
+      return this;
+    }
+
+    @Override
+    public PrintWriter format(Locale l, String format, Object... args) {
+      write(String.format(l, format, args));
+      return this;
+    }
+
+    @Override
+    public void flush() {
+      delegate.flush();
+    }
+
+    @Override
+    public void close() {
+      delegate.close();
+    }
+  }
+}
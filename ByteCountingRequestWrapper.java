@@ -0,0 +1,95 @@
+package demo.api;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * アプリが読み込んだリクエスト Body のバイト数を数えるラッパー（Content-Length のないチャンク転送用）.
+ */
+public class ByteCountingRequestWrapper extends HttpServletRequestWrapper {
+
+  private ServletInputStream inputStream;
+  private BufferedReader reader;
+  private long bytesRead;
+
+  public ByteCountingRequestWrapper(HttpServletRequest request) {
+    super(request);
+  }
+
+  @Override
+  public ServletInputStream getInputStream() throws IOException {
+    if (inputStream == null) {
+      inputStream = new CountingInputStream(super.getInputStream());
+    }
+    return inputStream;
+  }
+
+  @Override
+  public BufferedReader getReader() throws IOException {
+    if (reader == null) {
+      String encoding = getCharacterEncoding();
+      reader = new BufferedReader(new InputStreamReader(getInputStream(),
+	  encoding != null ? encoding : StandardCharsets.ISO_8859_1.name()));
+    }
+    return reader;
+  }
+
+  /**
+   * @return 読み込んだバイト数
+   */
+  public long getBytesRead() {
+    return bytesRead;
+  }
+
+  private final class CountingInputStream extends ServletInputStream {
+    private final ServletInputStream delegate;
+
+    private CountingInputStream(ServletInputStream delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = delegate.read();
+      if (b >= 0) {
+	bytesRead++;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int count = delegate.read(b, off, len);
+      if (count > 0) {
+	bytesRead += count;
+      }
+      return count;
+    }
+
+    @Override
+    public boolean isFinished() {
+      return delegate.isFinished();
+    }
+
+    @Override
+    public boolean isReady() {
+      return delegate.isReady();
+    }
+
+    @Override
+    public void setReadListener(ReadListener readListener) {
+      delegate.setReadListener(readListener);
+    }
+
+    @Override
+    public void close() throws IOException {
+      delegate.close();
+    }
+  }
+}
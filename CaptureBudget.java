@@ -0,0 +1,138 @@
+package demo.api;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * リクエスト/レスポンス Body キャプチャ用バッファのプロセス全体の上限.
+ *
+ * <p>
+ * 通常は 1 リクエストあたり {@code demo.capture.max-body-size} までキャプチャする.
+ * 使用量が {@code demo.capture.capped-threshold}（%）を超えると Body を {@code demo.capture.capped-body-size}
+ * までに制限し、上限に達するとヘッダのみのログに落とす. 取得はロックを使わず、失敗しても待たない.
+ */
+@Component
+public class CaptureBudget {
+
+  /**
+   * キャプチャのレベル.
+   */
+  public enum Mode {
+    /** Body 全体（予算が許す限り）. */
+    FULL,
+    /** Body 先頭のみ. */
+    CAPPED,
+    /** ヘッダのみ. */
+    HEADERS_ONLY
+  }
+
+  private final long budgetBytes;
+  private final int cappedBodySize;
+  private final int maxBodySize;
+  private final long cappedThresholdBytes;
+
+  private final AtomicLong inUse = new AtomicLong();
+  private final AtomicLong highWater = new AtomicLong();
+
+  private final Counter cappedCounter;
+  private final Counter headersOnlyCounter;
+  private final Counter truncatedCounter;
+
+  public CaptureBudget(@Value("${demo.capture.budget:64MB}") DataSize budget,
+      @Value("${demo.capture.capped-body-size:4KB}") DataSize cappedBodySize,
+      @Value("${demo.capture.max-body-size:1MB}") DataSize maxBodySize,
+      @Value("${demo.capture.capped-threshold:50}") int cappedThresholdPercent, MeterRegistry registry) {
+    this.budgetBytes = budget.toBytes();
+    this.cappedBodySize = (int) Math.min(Integer.MAX_VALUE, cappedBodySize.toBytes());
+    // 1 件の大きな Body が予算全体を占有しないよう、FULL でも上限を設ける
+    this.maxBodySize = (int) Math.min(Integer.MAX_VALUE, maxBodySize.toBytes());
+    this.cappedThresholdBytes = budgetBytes * cappedThresholdPercent / 100;
+
+    Gauge.builder("demo.capture.budget.used", inUse, AtomicLong::get).baseUnit("bytes")
+	.description("Bytes currently held by in-flight body capture buffers").register(registry);
+    Gauge.builder("demo.capture.budget.high.water", highWater, AtomicLong::get).baseUnit("bytes")
+	.description("Highest observed capture buffer usage").register(registry);
+    Gauge.builder("demo.capture.budget.max", () -> budgetBytes).baseUnit("bytes")
+	.description("Configured capture budget").register(registry);
+    cappedCounter = degradedCounter(registry, "capped");
+    headersOnlyCounter = degradedCounter(registry, "headers_only");
+    truncatedCounter = degradedCounter(registry, "truncated");
+  }
+
+  private static Counter degradedCounter(MeterRegistry registry, String mode) {
+    return Counter.builder("demo.capture.degraded").tag("mode", mode)
+	.description("Requests whose body capture was degraded because of the capture budget").register(registry);
+  }
+
+  /**
+   * 現在の使用量から今回のリクエストのキャプチャレベルを決める.
+   *
+   * @return キャプチャレベル
+   */
+  public Mode mode() {
+    long used = inUse.get();
+    if (used + cappedBodySize > budgetBytes) {
+      headersOnlyCounter.increment();
+      return Mode.HEADERS_ONLY;
+    }
+    if (used >= cappedThresholdBytes) {
+      cappedCounter.increment();
+      return Mode.CAPPED;
+    }
+    return Mode.FULL;
+  }
+
+  /**
+   * 予算からバイト数を確保する.
+   *
+   * @param bytes 確保するバイト数
+   * @return 確保できた場合 true
+   */
+  public boolean tryAcquire(long bytes) {
+    if (bytes <= 0) {
+      return true;
+    }
+    long used;
+    long next;
+    do {
+      used = inUse.get();
+      next = used + bytes;
+      if (next > budgetBytes) {
+	return false;
+      }
+    } while (!inUse.compareAndSet(used, next));
+    highWater.accumulateAndGet(next, Math::max);
+    return true;
+  }
+
+  /**
+   * 確保したバイト数を返却する.
+   *
+   * @param bytes 返却するバイト数
+   */
+  public void release(long bytes) {
+    if (bytes > 0) {
+      inUse.addAndGet(-bytes);
+    }
+  }
+
+  /**
+   * キャプチャ途中で予算不足により Body を打ち切ったことを記録する.
+   */
+  public void recordTruncated() {
+    truncatedCounter.increment();
+  }
+
+  public int getCappedBodySize() {
+    return cappedBodySize;
+  }
+
+  public int getMaxBodySize() {
+    return maxBodySize;
+  }
+}
@@ -2,7 +2,10 @@ package demo.api;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import demo.api.jfr.HttpExchangeEvent;
 import demo.api.utils.CheckUtils;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -18,6 +21,8 @@ import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
 import org.springframework.http.HttpHeaders;
@@ -25,7 +30,6 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 import org.springframework.web.servlet.HandlerMapping;
 import org.springframework.web.util.ContentCachingRequestWrapper;
-import org.springframework.web.util.ContentCachingResponseWrapper;
 
 @Component
 @Order(Ordered.HIGHEST_PRECEDENCE)
@@ -38,31 +42,146 @@ public class ContentCachingFilter extends OncePerRequestFilter {
 
   private static final ObjectMapper objectMapper = new ObjectMapper();
 
+  /**
+   * System.out は PrintStream の synchronized で仮想スレッドのキャリアを固定するため、ロガー経由で出力する.
+   */
+  private static final Logger logger = LoggerFactory.getLogger(ContentCachingFilter.class);
+
+  private final CaptureBudget captureBudget;
+
+  public ContentCachingFilter(CaptureBudget captureBudget) {
+    this.captureBudget = captureBudget;
+  }
+
   @Override
   protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
       throws ServletException, IOException {
 
-    // リクエストとレスポンスのBodyをキャッシュする
-    ContentCachingRequestWrapper requestWrapper = new ContentCachingRequestWrapper(request);
-    ContentCachingResponseWrapper responseWrapper = new ContentCachingResponseWrapper(response);
+    // キャプチャ予算に応じてBodyのキャッシュ範囲を決める（予算切れの場合はヘッダのみ）
+    // ロガーが無効な場合は Body を出力しないため予算を使わず、JFR 用のバイト数のみ数える
+    CaptureBudget.Mode mode = logger.isInfoEnabled() ? captureBudget.mode() : CaptureBudget.Mode.HEADERS_ONLY;
+    long requestReserved = reserveRequestCapture(mode, request);
+    ContentCachingRequestWrapper requestWrapper = requestReserved > 0
+	? new ContentCachingRequestWrapper(request, (int) requestReserved)
+	: null;
+    // JFR イベントのバイト数のため、ヘッダのみの場合も数えるだけのラッパーで包む
+    ByteCountingRequestWrapper countingRequest = new ByteCountingRequestWrapper(
+	requestWrapper != null ? requestWrapper : request);
+    BudgetedResponseWrapper responseWrapper = new BudgetedResponseWrapper(response, captureBudget,
+	switch (mode) {
+	case FULL -> captureBudget.getMaxBodySize();
+	case CAPPED -> captureBudget.getCappedBodySize();
+	case HEADERS_ONLY -> 0;
+	});
 
     Instant start = Instant.now();
-
-    // リクエストログ
-    logRequest(requestWrapper);
+    HttpExchangeEvent event = new HttpExchangeEvent();
+    event.begin();
 
     try {
-      filterChain.doFilter(requestWrapper, responseWrapper);
+      // リクエストログ
+      safely(() -> logRequest(request));
+
+      filterChain.doFilter(countingRequest, responseWrapper);
     } finally {
-      Instant end = Instant.now();
-      Duration duration = Duration.between(start, end);
+      Runnable finish = () -> {
+	try {
+	  Instant end = Instant.now();
+	  Duration duration = Duration.between(start, end);
+	  safely(() -> commitEvent(event, countingRequest, response, responseWrapper));
+
+	  // リクエストBodyはアプリが読み込んだ後にしかキャッシュされないため、ここで出力する
+	  safely(() -> logRequestBody(request, requestWrapper));
+
+	  // レスポンスログ
+	  safely(() -> logResponse(response, responseWrapper, duration));
+	} finally {
+	  // ログ出力で例外が発生しても予算は必ず返却する
+	  responseWrapper.release();
+	  captureBudget.release(requestReserved);
+	}
+      };
+      if (request.isAsyncStarted()) {
+	// 非同期/ストリーミング応答は最初のディスパッチ後も書き込みが続くため、完了時に解放する
+	request.getAsyncContext().addListener(new CompletionListener(finish));
+      } else {
+	finish.run();
+      }
+    }
+  }
 
-      // レスポンスログ
-      logResponse(responseWrapper, duration);
-      responseWrapper.copyBodyToResponse();
+  /**
+   * ログ出力・JFR 記録の例外でリクエストを失敗させない.
+   *
+   * @param action ログ出力処理
+   */
+  private static void safely(Runnable action) {
+    try {
+      action.run();
+    } catch (RuntimeException e) {
+      logger.warn("Failed to log request/response", e);
     }
   }
 
+  /**
+   * 非同期処理の完了時（タイムアウト・エラー後も必ず呼ばれる）にログ出力と予算の返却を行う.
+   */
+  private static final class CompletionListener implements AsyncListener {
+    private final Runnable finish;
+
+    private CompletionListener(Runnable finish) {
+      this.finish = finish;
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+      finish.run();
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+      // onComplete で処理する
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+      // onComplete で処理する
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+      // 再度 startAsync された場合も完了を待つ
+      event.getAsyncContext().addListener(this);
+    }
+  }
+
+  /**
+   * リクエストBodyのキャッシュ分を予算から確保する. FULL で確保できなければ先頭のみに落とす.
+   *
+   * @param mode    キャプチャレベル
+   * @param request リクエスト
+   * @return 確保したバイト数（0 の場合はキャッシュしない）
+   */
+  private long reserveRequestCapture(CaptureBudget.Mode mode, HttpServletRequest request) {
+    long contentLength = request.getContentLengthLong();
+    // Content-Length なしは Body のない GET 等も含むため、チャンク転送の場合のみ Body ありとみなす
+    boolean hasBody = contentLength > 0
+	|| (contentLength < 0 && request.getHeader(HttpHeaders.TRANSFER_ENCODING) != null);
+    if (mode == CaptureBudget.Mode.HEADERS_ONLY || !hasBody) {
+      return 0;
+    }
+    long capped = contentLength < 0 ? captureBudget.getCappedBodySize()
+	: Math.min(contentLength, captureBudget.getCappedBodySize());
+    if (mode == CaptureBudget.Mode.FULL && contentLength > capped) {
+      long full = Math.min(contentLength, captureBudget.getMaxBodySize());
+      if (captureBudget.tryAcquire(full)) {
+	return full;
+      }
+      captureBudget.recordTruncated();
+    }
+    return captureBudget.tryAcquire(capped) ? capped : 0;
+  }
+
   @Override
   protected void doFilterNestedErrorDispatch(HttpServletRequest request, HttpServletResponse response,
       FilterChain filterChain) throws ServletException, IOException {
@@ -70,11 +189,32 @@ public class ContentCachingFilter extends OncePerRequestFilter {
     super.doFilterNestedErrorDispatch(request, response, filterChain);
   }
 
-  private void logRequest(ContentCachingRequestWrapper request) {
-    System.out.println("=== 请求信息 ===");
+  /**
+   * JFR イベントを記録する. 閾値未満、またはレコーディング無効時は項目を設定しない.
+   */
+  private void commitEvent(HttpExchangeEvent event, ByteCountingRequestWrapper request, HttpServletResponse response,
+      BudgetedResponseWrapper responseWrapper) {
+    event.end();
+    if (!event.shouldCommit()) {
+      return;
+    }
+    String route = (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+    event.method = request.getMethod();
+    event.route = route != null ? route : request.getRequestURI();
+    event.status = response.getStatus();
+    event.bytesIn = Math.max(request.getContentLengthLong(), request.getBytesRead());
+    event.bytesOut = responseWrapper.getBytesWritten();
+    event.commit();
+  }
+
+  private void logRequest(HttpServletRequest request) {
+    if (!logger.isInfoEnabled()) {
+      return;
+    }
+    logger.info("=== 请求信息 ===");
 //    request.getServletPath()
-    System.out.println("URL: " + request.getRequestURL());
-    System.out.println("Method: " + request.getMethod());
+    logger.info("URL: {}", request.getRequestURL());
+    logger.info("Method: {}", request.getMethod());
 
     String fullUrl = request.getRequestURL().toString() + getFullUrl(request);
 
@@ -87,46 +227,54 @@ public class ContentCachingFilter extends OncePerRequestFilter {
 //    System.out.println("Headers: "
 //	+ Collections.list(request.getHeaderNames()).stream().collect(Collectors.toMap(h -> h, request::getHeader)));
     try {
-      System.out.println("Headers: " + objectMapper.writeValueAsString(headers));
+      logger.info("Headers: {}", objectMapper.writeValueAsString(headers));
     } catch (JsonProcessingException e) {
-      // TODO 自動生成された catch ブロック
-      e.printStackTrace();
+      logger.warn("Failed to write request headers", e);
     }
 
 //  if (requestBody.contains("password")) {
 //  requestBody = requestBody.replaceAll("\"password\":\".*?\"", "\"password\":\"***\"");
 //}
+  }
+
+  private void logRequestBody(HttpServletRequest request, ContentCachingRequestWrapper requestWrapper) {
+    if (requestWrapper == null || !logger.isInfoEnabled()) {
+      return;
+    }
 
     // Bodyの文字コードを取得する
     String charset = getCharset(request.getContentType());
 
-    byte[] requestBody = request.getContentAsByteArray();
+    byte[] requestBody = requestWrapper.getContentAsByteArray();
     if (requestBody.length > 0) {
       try {
-	System.out.println("Body: " + new String(requestBody, charset));
+	logger.info("Body: {}", new String(requestBody, charset));
       } catch (UnsupportedEncodingException e) {
 	// 処理なし
       }
     }
   }
 
-  private void logResponse(ContentCachingResponseWrapper response, Duration duration) {
-    System.out.println("=== 响应信息 ===");
-    System.out.println("Status: " + response.getStatus());
+  private void logResponse(HttpServletResponse response, BudgetedResponseWrapper responseWrapper, Duration duration) {
+    if (!logger.isInfoEnabled()) {
+      return;
+    }
+    logger.info("=== 响应信息 ===");
+    logger.info("Status: {}", response.getStatus());
     // 记录所有响应头（支持多值头）
     HttpHeaders headers = new HttpHeaders();
     response.getHeaderNames().forEach(
 	headerName -> response.getHeaders(headerName).forEach(headerValue -> headers.add(headerName, headerValue)));
-    System.out.println("All Headers: " + headers);
+    logger.info("All Headers: {}", headers);
 
     // Bodyの文字コードを取得する
     String charset = getCharset(response.getContentType());
 
     // 读取缓存的响应 Body
-    byte[] responseBody = response.getContentAsByteArray();
+    byte[] responseBody = responseWrapper.getContentAsByteArray();
     if (responseBody.length > 0) {
       try {
-	System.out.println("body: " + new String(responseBody, charset));
+	logger.info("body: {}{}", new String(responseBody, charset), responseWrapper.isTruncated() ? "..." : "");
       } catch (UnsupportedEncodingException e) {
 	// 処理なし
       }
@@ -151,9 +299,9 @@ public class ContentCachingFilter extends OncePerRequestFilter {
     return charset;
   }
 
-  private String getFullUrl(ContentCachingRequestWrapper request) {
+  private String getFullUrl(HttpServletRequest request) {
     String fullUrl = request.getRequestURL().toString();
-    if (CheckUtils.isEmpty(request.getQueryString())) {
+    if (!CheckUtils.isEmpty(request.getQueryString())) {
       fullUrl += "?" + URLDecoder.decode(request.getQueryString(), StandardCharsets.UTF_8);
     }
 
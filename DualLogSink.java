@@ -25,6 +25,14 @@ public class DualLogSink implements Sink {
     this.formatter = formatter;
   }
 
+  /**
+   * 両方のロガーが無効な場合は Logbook に Body のバッファリングと整形をさせない.
+   */
+  @Override
+  public boolean isActive() {
+    return basicLogger.isInfoEnabled() || bodyLogger.isInfoEnabled();
+  }
+
   @Override
   public void write(@Nonnull Precorrelation precorrelation, @Nonnull HttpRequest request) throws IOException {
     // 1. 使用Logbook格式化器记录完整请求信息
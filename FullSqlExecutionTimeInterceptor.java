@@ -1,5 +1,6 @@
 package demo.api;
 
+import demo.api.jfr.SqlStatementEvent;
 import java.lang.reflect.Field;
 import java.sql.Statement;
 import java.text.SimpleDateFormat;
@@ -33,16 +34,28 @@ public class FullSqlExecutionTimeInterceptor implements Interceptor {
   @Override
   public Object intercept(Invocation invocation) throws Throwable {
     long startTime = System.currentTimeMillis();
+    SqlStatementEvent event = new SqlStatementEvent();
+    event.begin();
+    Object result = null;
     try {
-      return invocation.proceed();
+      result = invocation.proceed();
+      return result;
     } finally {
       long endTime = System.currentTimeMillis();
       long executionTime = endTime - startTime;
+      event.end();
 
       StatementHandler handler = (StatementHandler) invocation.getTarget();
       String methodName = invocation.getMethod().getName();
       MetaObject metaObject = SystemMetaObject.forObject(handler);
       MappedStatement mappedStatement = (MappedStatement) metaObject.getValue("delegate.mappedStatement");
+      if (event.shouldCommit()) {
+	event.mapperId = mappedStatement.getId();
+	event.commandType = mappedStatement.getSqlCommandType().name();
+	event.rows = SqlStatementEvent.rows(result);
+	event.sqlFingerprint = SqlStatementEvent.fingerprint(handler.getBoundSql().getSql());
+	event.commit();
+      }
       String mapperId = mappedStatement.getId();
       String sql = getRealSql(mappedStatement.getConfiguration(), handler.getBoundSql());
 
@@ -0,0 +1,43 @@
+package demo.api.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * HTTP リクエスト1件分の JFR イベント（{@code ContentCachingFilter} が発行）.
+ *
+ * <p>
+ * 常時有効にしておく前提のため、スタックトレースは取得しない. 閾値は {@link JfrRecordingConfig} で設定する.
+ */
+@Name(HttpExchangeEvent.NAME)
+@Label("HTTP Exchange")
+@Category({ "Demo", "HTTP" })
+@Description("Servlet request handled by ContentCachingFilter")
+@StackTrace(false)
+public class HttpExchangeEvent extends Event {
+
+  public static final String NAME = "demo.HttpExchange";
+
+  @Label("Method")
+  public String method;
+
+  @Label("Route")
+  @Description("Best matching handler pattern, or the request URI when no handler matched")
+  public String route;
+
+  @Label("Status")
+  public int status;
+
+  @Label("Bytes In")
+  @DataAmount
+  public long bytesIn;
+
+  @Label("Bytes Out")
+  @DataAmount
+  public long bytesOut;
+}
@@ -0,0 +1,90 @@
+package demo.api.jfr;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+/**
+ * 連続レコーディングの現在の保持分を .jfr としてダウンロードする actuator エンドポイント.
+ *
+ * <p>
+ * {@code GET /actuator/jfr} （{@code management.endpoints.web.exposure.include} に {@code jfr} が必要）.
+ * heapdump と同様に一時ファイルからストリームで返し、送信後に削除する.
+ */
+@Component
+@WebEndpoint(id = "jfr")
+@ConditionalOnProperty(name = "demo.jfr.enabled", havingValue = "true", matchIfMissing = true)
+public class JfrEndpoint {
+
+  private final JfrRecordingConfig recordingConfig;
+
+  public JfrEndpoint(JfrRecordingConfig recordingConfig) {
+    this.recordingConfig = recordingConfig;
+  }
+
+  @ReadOperation(produces = "application/octet-stream")
+  public WebEndpointResponse<Resource> dump() {
+    try {
+      Path file = Files.createTempFile("demo-", ".jfr");
+      try {
+	recordingConfig.getRecording().dump(file);
+      } catch (IOException | RuntimeException e) {
+	Files.deleteIfExists(file);
+	throw e;
+      }
+      return new WebEndpointResponse<>(new TemporaryFileResource(file));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * 読み終わった（ストリームを閉じた）時点でファイルを削除するリソース.
+   */
+  private static final class TemporaryFileResource extends FileSystemResource {
+
+    private final Path path;
+
+    private TemporaryFileResource(Path path) {
+      super(path);
+      this.path = path;
+    }
+
+    @Override
+    public ReadableByteChannel readableChannel() throws IOException {
+      return Files.newByteChannel(path, StandardOpenOption.READ, StandardOpenOption.DELETE_ON_CLOSE);
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+      return new FilterInputStream(super.getInputStream()) {
+	@Override
+	public void close() throws IOException {
+	  try {
+	    super.close();
+	  } finally {
+	    Files.deleteIfExists(path);
+	  }
+	}
+      };
+    }
+
+    @Override
+    public boolean isFile() {
+      // ファイルとして扱わせず、上記のストリーム経由で読ませる
+      return false;
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package demo.api.jfr;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * HTTP/SQL の JFR イベントを常時記録する連続レコーディング.
+ *
+ * <p>
+ * 直近 {@code demo.jfr.max-age} / {@code demo.jfr.max-size} 分だけをメモリ・一時ファイルに保持し、
+ * 障害時に {@link JfrEndpoint} からダンプする. 閾値未満のイベントはコミットされない.
+ */
+@Configuration
+@ConditionalOnProperty(name = "demo.jfr.enabled", havingValue = "true", matchIfMissing = true)
+public class JfrRecordingConfig {
+
+  private static final Logger logger = LoggerFactory.getLogger(JfrRecordingConfig.class);
+
+  private final Recording recording;
+
+  public JfrRecordingConfig(@Value("${demo.jfr.http-threshold:0ms}") Duration httpThreshold,
+      @Value("${demo.jfr.sql-threshold:10ms}") Duration sqlThreshold,
+      @Value("${demo.jfr.pinned-threshold:20ms}") Duration pinnedThreshold,
+      @Value("${demo.jfr.max-age:30m}") Duration maxAge, @Value("${demo.jfr.max-size:64MB}") DataSize maxSize) {
+    FlightRecorder.register(HttpExchangeEvent.class);
+    FlightRecorder.register(SqlStatementEvent.class);
+
+    recording = new Recording();
+    recording.setName("demo-continuous");
+    recording.setToDisk(true);
+    recording.setMaxAge(maxAge);
+    recording.setMaxSize(maxSize.toBytes());
+    recording.enable(HttpExchangeEvent.NAME).withThreshold(httpThreshold).withoutStackTrace();
+    recording.enable(SqlStatementEvent.NAME).withThreshold(sqlThreshold).withoutStackTrace();
+    // 仮想スレッドの pinning は原因箇所の特定にスタックトレースが必要（発生頻度は低い）
+    recording.enable("jdk.VirtualThreadPinned").withThreshold(pinnedThreshold).withStackTrace();
+    recording.start();
+    logger.info(
+	"JFR continuous recording started: httpThreshold={} sqlThreshold={} pinnedThreshold={} maxAge={} maxSize={}",
+	httpThreshold, sqlThreshold, pinnedThreshold, maxAge, maxSize);
+  }
+
+  public Recording getRecording() {
+    return recording;
+  }
+
+  @PreDestroy
+  public void close() {
+    recording.close();
+  }
+}
@@ -1,5 +1,6 @@
 package demo.api;
 
+import demo.api.jfr.SqlStatementEvent;
 import java.util.Properties;
 import java.util.regex.Pattern;
 import org.apache.ibatis.executor.Executor;
@@ -30,12 +31,27 @@ public class SqlCostLoggingInterceptor implements Interceptor {
   @Override
   public Object intercept(Invocation invocation) throws Throwable {
     long start = System.currentTimeMillis();
-    Object result = invocation.proceed();
-    long cost = System.currentTimeMillis() - start;
-
+    SqlStatementEvent event = new SqlStatementEvent();
+    event.begin();
     Object[] args = invocation.getArgs();
     MappedStatement ms = (MappedStatement) args[0];
     Object param = args.length > 1 ? args[1] : null;
+    Object result = null;
+    try {
+      result = invocation.proceed();
+    } finally {
+      // 失敗した SQL も記録する（rows は -1）
+      event.end();
+      if (event.shouldCommit()) {
+	event.mapperId = ms.getId();
+	event.commandType = ms.getSqlCommandType().name();
+	event.rows = SqlStatementEvent.rows(result);
+	event.sqlFingerprint = SqlStatementEvent.fingerprint(ms.getBoundSql(param).getSql());
+	event.commit();
+      }
+    }
+    long cost = System.currentTimeMillis() - start;
+
     BoundSql boundSql = ms.getBoundSql(param);
     String formattedSql = WHITESPACE.matcher(boundSql.getSql()).replaceAll(" ").trim();
     String method = ms.getId();
@@ -37,7 +37,7 @@ public class SqlLogInterceptor implements Interceptor {
       MetaObject metaObject = SystemMetaObject.forObject(statementHandler);
       // 如果是insert操作， 或者 @SqlParser(filter = true) 跳过该方法解析 ， 不进行验证
       MappedStatement mappedStatement = (MappedStatement) metaObject.getValue("delegate.mappedStatement");
-      System.out.println("SQL操作类型：" + mappedStatement.getSqlCommandType());
+      log.info("SQL操作类型：{}", mappedStatement.getSqlCommandType());
       BoundSql boundSql = (BoundSql) metaObject.getValue("delegate.boundSql");
       Configuration configuration = mappedStatement.getConfiguration();
       String originalSql = boundSql.getSql();
@@ -0,0 +1,72 @@
+package demo.api.jfr;
+
+import java.util.regex.Pattern;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * SQL 1回分の JFR イベント（MyBatis インターセプタが発行）.
+ *
+ * <p>
+ * パラメータ値は記録せず、リテラルを {@code ?} に置き換えた SQL（フィンガープリント）のみを持つ.
+ */
+@Name(SqlStatementEvent.NAME)
+@Label("SQL Statement")
+@Category({ "Demo", "SQL" })
+@Description("MyBatis statement executed through an interceptor")
+@StackTrace(false)
+public class SqlStatementEvent extends Event {
+
+  public static final String NAME = "demo.SqlStatement";
+
+  /** 文字列・数値リテラル. */
+  private static final Pattern LITERAL = Pattern.compile("'(?:[^']|'')*'|\\b\\d+(?:\\.\\d+)?\\b");
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+  @Label("Mapper Id")
+  public String mapperId;
+
+  @Label("Command Type")
+  public String commandType;
+
+  @Label("Rows")
+  @Description("Rows returned or affected, -1 when unknown (cursor, batch)")
+  public long rows;
+
+  @Label("SQL Fingerprint")
+  public String sqlFingerprint;
+
+  /**
+   * SQL の空白を詰め、リテラルを {@code ?} に置き換える.
+   *
+   * @param sql SQL
+   * @return フィンガープリント
+   */
+  public static String fingerprint(String sql) {
+    if (sql == null) {
+      return null;
+    }
+    String normalized = WHITESPACE.matcher(sql).replaceAll(" ").trim();
+    return LITERAL.matcher(normalized).replaceAll("?");
+  }
+
+  /**
+   * MyBatis の戻り値から件数を求める.
+   *
+   * @param result {@code Invocation#proceed()} の戻り値
+   * @return 件数（不明な場合は -1）
+   */
+  public static long rows(Object result) {
+    if (result instanceof java.util.List<?> list) {
+      return list.size();
+    }
+    if (result instanceof Integer count) {
+      return count;
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,567 @@
+package demo.api.replay;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.NullNode;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * 取得済みのリクエスト（Logbook JSON / curl 形式）を起動中のアプリに再送し、性能を測定するツール.
+ *
+ * <p>
+ * 読み込める形式:
+ * <ul>
+ * <li>{@code test_request.json} のような Logbook JSON（整形済み・複数連結・JSON Lines いずれも可）</li>
+ * <li>{@code DualLogSink} が BASIC_LOG に出力した "Formatted Request" の JSON 行／curl 行</li>
+ * </ul>
+ * BODY_LOG の "Request Body" 行はメソッドと URI を持たないため再送対象外.
+ *
+ * <p>
+ * 使い方（オプションは全て {@code --key=value}）:
+ *
+ * <pre>
+ * java demo.api.replay.TrafficReplayer --capture=test_request.json,logs/basic-info.log \
+ *     --target=http://localhost:8080 --concurrency=50 --duration=60 --compare-logging=true
+ * </pre>
+ *
+ * {@code --rate} を指定すると open-loop（到着率固定）で送信し、遅延は予定送信時刻から計測する.
+ * アロケーション／GC（仮想スレッドモードでは pinning 回数も）はアプリ側の actuator metrics の差分で算出する.
+ * {@code --label} は結果の行頭に付ける名前（プラットフォームスレッド／仮想スレッドの比較用）.
+ *
+ * <p>
+ * {@code --compare-logging} の logging-off は {@code --loggers} のロガーを actuator で OFF にするだけのため、
+ * ロガーを経由しない出力（System.out 等）は計測差に含まれない.
+ * replay プロファイルの ds1/ds2 は空の H2 のため、Mapper に到達するエンドポイントは INIT スクリプトを用意しない限り 500 になる.
+ * エラー経路を計測してしまわないよう、2xx 以外の割合が {@code --max-error-ratio}（既定 0.5）を超えた場合は
+ * レポート出力後に失敗として終了する. 対象外のパスは {@code --exclude=<正規表現>} で除外する.
+ */
+public class TrafficReplayer {
+
+  /** HttpClient が設定を許可しない、または再送時に意味を持たないヘッダ. */
+  private static final Set<String> SKIPPED_HEADERS = Set.of("host", "connection", "content-length", "expect",
+      "upgrade", "accept-encoding", "transfer-encoding");
+
+  /** 再送時に OFF にするロガー（BASIC_LOG, BODY_LOG, Logbook, SQL インターセプタ）. */
+  private static final String DEFAULT_LOGGERS = "BASIC_LOGGER,BODY_LOGGER,org.zalando.logbook,demo";
+
+  private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+  private static final ObjectMapper objectMapper = new ObjectMapper();
+
+  /**
+   * 取得済みリクエスト.
+   */
+  record CapturedExchange(String method, String pathAndQuery, Map<String, List<String>> headers, String body) {
+  }
+
+  /**
+   * 1回分の測定結果.
+   */
+  record RunResult(String label, long[] latenciesNanos, long errors, Map<Integer, Long> statusCounts,
+      long elapsedNanos, double allocatedBytes, double gcCount, double gcPauseSeconds, double pinnedCount) {
+  }
+
+  private final Map<String, String> options;
+  private final ExecutorService clientExecutor;
+  private final HttpClient client;
+  private final URI target;
+  private final String actuatorBase;
+
+  TrafficReplayer(Map<String, String> options) {
+    this.options = options;
+    this.target = URI.create(option("target", "http://localhost:8080"));
+    this.actuatorBase = stripTrailingSlash(target.toString()) + option("actuator", "/demo/actuator");
+    // 非デーモンのスレッドプールだとレポート出力後も JVM が終了しないため、仮想スレッドを使い run() の最後に閉じる
+    this.clientExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    this.client = HttpClient.newBuilder()
+	.connectTimeout(Duration.ofSeconds(3))
+	.executor(clientExecutor)
+	.build();
+  }
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = new LinkedHashMap<>();
+    for (String arg : args) {
+      if (arg.startsWith("--") && arg.contains("=")) {
+	int idx = arg.indexOf('=');
+	options.put(arg.substring(2, idx), arg.substring(idx + 1));
+      }
+    }
+    new TrafficReplayer(options).run();
+  }
+
+  void run() throws Exception {
+    try {
+      replay();
+    } finally {
+      client.shutdownNow();
+      clientExecutor.shutdownNow();
+    }
+  }
+
+  private void replay() throws Exception {
+    List<CapturedExchange> exchanges = new ArrayList<>();
+    for (String file : option("capture", "test_request.json").split(",")) {
+      exchanges.addAll(readCapture(Path.of(file.trim())));
+    }
+    String exclude = option("exclude", "");
+    if (!exclude.isEmpty()) {
+      Pattern excluded = Pattern.compile(exclude);
+      exchanges.removeIf(exchange -> excluded.matcher(exchange.pathAndQuery()).find());
+    }
+    if (exchanges.isEmpty()) {
+      throw new IllegalArgumentException("再送可能なリクエストが見つかりません: " + option("capture", ""));
+    }
+    System.out.printf("loaded %d exchanges, target=%s%n", exchanges.size(), target);
+
+    List<RunResult> results = new ArrayList<>();
+    String label = option("label", "");
+    results.add(measure(label + "logging-on", exchanges));
+
+    if (Boolean.parseBoolean(option("compare-logging", "false"))) {
+      List<String> loggers = Arrays.asList(option("loggers", DEFAULT_LOGGERS).split(","));
+      Map<String, String> saved = new LinkedHashMap<>();
+      try {
+	for (String logger : loggers) {
+	  saved.put(logger, readConfiguredLevel(logger));
+	  setLoggerLevel(logger, "OFF");
+	}
+	results.add(measure(label + "logging-off", exchanges));
+      } finally {
+	// 元のレベルに戻す（null の場合は継承に戻る）
+	for (Map.Entry<String, String> entry : saved.entrySet()) {
+	  setLoggerLevel(entry.getKey(), entry.getValue());
+	}
+      }
+    }
+
+    printReport(results);
+    if (results.size() > 1) {
+      System.out.println("logging-off で OFF にしたロガー: " + option("loggers", DEFAULT_LOGGERS)
+	  + "（ロガーを経由しない出力は対象外）");
+    }
+    checkErrorRatio(results);
+  }
+
+  /**
+   * 2xx 以外の応答が多すぎる場合は、正常系ではなくエラー経路を計測しているため失敗にする.
+   */
+  private void checkErrorRatio(List<RunResult> results) {
+    double maxErrorRatio = Double.parseDouble(option("max-error-ratio", "0.5"));
+    for (RunResult result : results) {
+      long total = result.latenciesNanos().length;
+      long success = result.statusCounts().entrySet().stream()
+	  .filter(entry -> entry.getKey() >= 200 && entry.getKey() < 300)
+	  .mapToLong(Map.Entry::getValue)
+	  .sum();
+      if (total > 0 && (double) (total - success) / total > maxErrorRatio) {
+	throw new IllegalStateException(String.format(
+	    "%s: 2xx 以外の応答が %.0f%% あり、結果は有効ではありません（status %s）. "
+		+ "DB の INIT スクリプトを用意するか --exclude で該当パスを除外してください",
+	    result.label(), 100.0 * (total - success) / total, result.statusCounts()));
+      }
+    }
+  }
+
+  private RunResult measure(String label, List<CapturedExchange> exchanges) throws Exception {
+    long warmupSeconds = Long.parseLong(option("warmup", "10"));
+    long durationSeconds = Long.parseLong(option("duration", "60"));
+
+    if (warmupSeconds > 0) {
+      drive(exchanges, warmupSeconds, null);
+    }
+
+    double allocatedBefore = metric("jvm.gc.memory.allocated", "COUNT");
+    double gcCountBefore = metric("jvm.gc.pause", "COUNT");
+    double gcTimeBefore = metric("jvm.gc.pause", "TOTAL_TIME");
+    double pinnedBefore = metric("demo.vthread.pinned", "COUNT");
+
+    LatencyRecorder recorder = new LatencyRecorder();
+    long elapsed = drive(exchanges, durationSeconds, recorder);
+
+    return new RunResult(label, recorder.sorted(), recorder.errors.sum(), recorder.statusCounts(), elapsed,
+	metric("jvm.gc.memory.allocated", "COUNT") - allocatedBefore, metric("jvm.gc.pause", "COUNT") - gcCountBefore,
+	metric("jvm.gc.pause", "TOTAL_TIME") - gcTimeBefore, metric("demo.vthread.pinned", "COUNT") - pinnedBefore);
+  }
+
+  /**
+   * 指定時間リクエストを送り続ける. {@code recorder} が null の場合はウォームアップとして結果を捨てる.
+   *
+   * @return スループット計算に使う経過時間（ナノ秒）. open-loop では送信期間のみで、応答待ちの時間を含まない
+   */
+  private long drive(List<CapturedExchange> exchanges, long seconds, LatencyRecorder recorder)
+      throws InterruptedException {
+    double rate = Double.parseDouble(option("rate", "0"));
+    AtomicLong sequence = new AtomicLong();
+    long start = System.nanoTime();
+    long deadline = start + TimeUnit.SECONDS.toNanos(seconds);
+
+    if (rate > 0) {
+      // open-loop: 応答を待たずに一定間隔で送信し、予定時刻からの遅延を計測する（coordinated omission 回避）
+      long periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+      long origin = System.nanoTime();
+      Map<Long, Long> inFlight = new ConcurrentHashMap<>();
+      ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+      scheduler.scheduleAtFixedRate(() -> {
+	long seq = sequence.getAndIncrement();
+	long intended = origin + seq * periodNanos;
+	CapturedExchange exchange = exchanges.get((int) (seq % exchanges.size()));
+	// 例外がタスク外に出ると scheduleAtFixedRate 以降の送信が止まるため、エラーとして記録して続ける
+	try {
+	  inFlight.put(seq, intended);
+	  client.sendAsync(toHttpRequest(exchange), HttpResponse.BodyHandlers.discarding())
+	      .whenComplete((response, error) -> {
+		// 打ち切り後に完了したものは既にタイムアウトとして記録済み
+		if (inFlight.remove(seq) != null) {
+		  record(recorder, intended, response, error);
+		}
+	      });
+	} catch (RuntimeException e) {
+	  if (inFlight.remove(seq) != null) {
+	    record(recorder, intended, null, e);
+	  }
+	}
+      }, 0, periodNanos, TimeUnit.NANOSECONDS);
+      TimeUnit.NANOSECONDS.sleep(Math.max(0, deadline - System.nanoTime()));
+      scheduler.shutdownNow();
+      long sendElapsed = System.nanoTime() - start;
+      // 送信済みリクエストの応答を待つ（最大30秒）
+      long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+      while (!inFlight.isEmpty() && System.nanoTime() < drainDeadline) {
+	TimeUnit.MILLISECONDS.sleep(10);
+      }
+      // 応答が返らなかったものは待った時間までの遅延でエラーとして記録する（tail を過小評価しない）
+      for (Long seq : new ArrayList<>(inFlight.keySet())) {
+	Long intended = inFlight.remove(seq);
+	if (intended != null) {
+	  record(recorder, intended, null, new TimeoutException());
+	}
+      }
+      return sendElapsed;
+    }
+
+    // closed-loop: 固定数のワーカーが応答を受けてから次を送る（高並列でも送信側が律速しないよう仮想スレッドを使う）
+    int concurrency = Integer.parseInt(option("concurrency", "10"));
+    ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+    for (int i = 0; i < concurrency; i++) {
+      workers.execute(() -> {
+	while (System.nanoTime() < deadline) {
+	  CapturedExchange exchange = exchanges.get((int) (sequence.getAndIncrement() % exchanges.size()));
+	  long begin = System.nanoTime();
+	  try {
+	    HttpResponse<Void> response = client.send(toHttpRequest(exchange), HttpResponse.BodyHandlers.discarding());
+	    record(recorder, begin, response, null);
+	  } catch (IOException | RuntimeException e) {
+	    // ワーカーが終了すると並列数が黙って減るため、エラーとして記録して続ける
+	    record(recorder, begin, null, e);
+	  } catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    return;
+	  }
+	}
+      });
+    }
+    workers.shutdown();
+    workers.awaitTermination(seconds + 30, TimeUnit.SECONDS);
+    return System.nanoTime() - start;
+  }
+
+  private static void record(LatencyRecorder recorder, long begin, HttpResponse<?> response, Throwable error) {
+    if (recorder == null) {
+      return;
+    }
+    recorder.add(System.nanoTime() - begin);
+    int status = error != null ? -1 : response.statusCode();
+    recorder.statuses.computeIfAbsent(status, k -> new LongAdder()).increment();
+    if (error != null || status >= 400) {
+      recorder.errors.increment();
+    }
+  }
+
+  private HttpRequest toHttpRequest(CapturedExchange exchange) {
+    HttpRequest.BodyPublisher publisher = exchange.body() == null || exchange.body().isEmpty()
+	? HttpRequest.BodyPublishers.noBody()
+	: HttpRequest.BodyPublishers.ofString(exchange.body(), StandardCharsets.UTF_8);
+    HttpRequest.Builder builder = HttpRequest.newBuilder(target.resolve(exchange.pathAndQuery()))
+	.timeout(Duration.ofSeconds(30))
+	.method(exchange.method(), publisher);
+    exchange.headers().forEach((name, values) -> {
+      if (!SKIPPED_HEADERS.contains(name.toLowerCase(Locale.ROOT))) {
+	values.forEach(value -> builder.header(name, value));
+      }
+    });
+    return builder.build();
+  }
+
+  /**
+   * 取得ファイルを読み込む. ファイル全体が JSON の連続であればそれを、そうでなければログとして行単位で解析する.
+   */
+  static List<CapturedExchange> readCapture(Path file) throws IOException {
+    String content = Files.readString(file, StandardCharsets.UTF_8);
+    List<CapturedExchange> exchanges = new ArrayList<>();
+    try (MappingIterator<JsonNode> values = objectMapper.readerFor(JsonNode.class).readValues(content)) {
+      while (values.hasNext()) {
+	addIfRequest(exchanges, values.next());
+      }
+      return exchanges;
+    } catch (IOException | RuntimeException e) {
+      // ログファイル（先頭にタイムスタンプ等が付く）として解析する
+      exchanges.clear();
+    }
+
+    for (String line : content.split("\\R")) {
+      int curl = line.indexOf("curl -v -X ");
+      if (curl >= 0) {
+	CapturedExchange exchange = parseCurl(line.substring(curl));
+	if (exchange != null) {
+	  exchanges.add(exchange);
+	}
+      } else if (line.trim().startsWith("{")) {
+	try {
+	  addIfRequest(exchanges, objectMapper.readTree(line.trim()));
+	} catch (IOException e) {
+	  // JSON でない行は無視する
+	}
+      }
+    }
+    return exchanges;
+  }
+
+  private static void addIfRequest(List<CapturedExchange> exchanges, JsonNode node) {
+    if (!"request".equals(node.path("type").asText()) || !node.hasNonNull("uri")) {
+      return;
+    }
+    Map<String, List<String>> headers = new LinkedHashMap<>();
+    Iterator<Map.Entry<String, JsonNode>> fields = node.path("headers").fields();
+    while (fields.hasNext()) {
+      Map.Entry<String, JsonNode> field = fields.next();
+      List<String> values = new ArrayList<>();
+      if (field.getValue().isArray()) {
+	field.getValue().forEach(value -> values.add(value.asText()));
+      } else {
+	values.add(field.getValue().asText());
+      }
+      headers.put(field.getKey(), values);
+    }
+    JsonNode body = node.path("body");
+    String bodyText = body.isMissingNode() || body instanceof NullNode ? null
+	: body.isTextual() ? body.asText() : body.toString();
+    exchanges.add(new CapturedExchange(node.path("method").asText("GET"), pathAndQuery(node.get("uri").asText()),
+	headers, bodyText));
+  }
+
+  /**
+   * Logbook の curl 形式 ({@code curl -v -X GET 'url' -H 'k: v' --data-binary 'body'}) を解析する.
+   */
+  static CapturedExchange parseCurl(String line) {
+    List<String> tokens = tokenize(line);
+    String method = "GET";
+    String url = null;
+    String body = null;
+    Map<String, List<String>> headers = new LinkedHashMap<>();
+    for (int i = 1; i < tokens.size(); i++) {
+      String token = tokens.get(i);
+      if ("-X".equals(token) && i + 1 < tokens.size()) {
+	method = tokens.get(++i);
+      } else if ("-H".equals(token) && i + 1 < tokens.size()) {
+	String header = tokens.get(++i);
+	int colon = header.indexOf(':');
+	if (colon > 0) {
+	  headers.computeIfAbsent(header.substring(0, colon).trim(), k -> new ArrayList<>())
+	      .add(header.substring(colon + 1).trim());
+	}
+      } else if (("--data-binary".equals(token) || "--data".equals(token)) && i + 1 < tokens.size()) {
+	body = tokens.get(++i);
+      } else if (token.startsWith("http://") || token.startsWith("https://")) {
+	url = token;
+      }
+    }
+    return url == null ? null : new CapturedExchange(method, pathAndQuery(url), headers, body);
+  }
+
+  /**
+   * シェル風に空白で分割する（シングルクォート内の {@code \'} エスケープに対応）.
+   */
+  private static List<String> tokenize(String line) {
+    List<String> tokens = new ArrayList<>();
+    StringBuilder current = null;
+    boolean quoted = false;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (quoted) {
+	if (c == '\\' && i + 1 < line.length() && line.charAt(i + 1) == '\'') {
+	  current.append('\'');
+	  i++;
+	} else if (c == '\'') {
+	  quoted = false;
+	} else {
+	  current.append(c);
+	}
+      } else if (c == '\'') {
+	quoted = true;
+	if (current == null) {
+	  current = new StringBuilder();
+	}
+      } else if (Character.isWhitespace(c)) {
+	if (current != null) {
+	  tokens.add(current.toString());
+	  current = null;
+	}
+      } else {
+	if (current == null) {
+	  current = new StringBuilder();
+	}
+	current.append(c);
+      }
+    }
+    if (current != null) {
+      tokens.add(current.toString());
+    }
+    return tokens;
+  }
+
+  private static String pathAndQuery(String uri) {
+    URI parsed = URI.create(uri);
+    String rawQuery = parsed.getRawQuery();
+    return parsed.getRawPath() + (rawQuery == null ? "" : "?" + rawQuery);
+  }
+
+  /**
+   * actuator metrics から指定統計値を取得する. 取得できない場合は NaN.
+   */
+  private double metric(String name, String statistic) {
+    try {
+      HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(actuatorBase + "/metrics/" + name))
+	  .GET().build(), HttpResponse.BodyHandlers.ofString());
+      if (response.statusCode() != 200) {
+	return Double.NaN;
+      }
+      for (JsonNode measurement : objectMapper.readTree(response.body()).path("measurements")) {
+	if (statistic.equals(measurement.path("statistic").asText())) {
+	  return measurement.path("value").asDouble();
+	}
+      }
+    } catch (IOException e) {
+      // 処理なし
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return Double.NaN;
+  }
+
+  private String readConfiguredLevel(String logger) throws IOException, InterruptedException {
+    HttpResponse<String> response = client.send(
+	HttpRequest.newBuilder(URI.create(actuatorBase + "/loggers/" + logger)).GET().build(),
+	HttpResponse.BodyHandlers.ofString());
+    JsonNode level = objectMapper.readTree(response.body()).path("configuredLevel");
+    return level.isTextual() ? level.asText() : null;
+  }
+
+  private void setLoggerLevel(String logger, String level) throws IOException, InterruptedException {
+    Map<String, String> payload = new LinkedHashMap<>();
+    payload.put("configuredLevel", level);
+    HttpResponse<Void> response = client.send(HttpRequest.newBuilder(URI.create(actuatorBase + "/loggers/" + logger))
+	.header("Content-Type", "application/json")
+	.POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(payload)))
+	.build(), HttpResponse.BodyHandlers.discarding());
+    if (response.statusCode() >= 400) {
+      throw new IllegalStateException("ロガーレベルの変更に失敗しました: " + logger + " status=" + response.statusCode());
+    }
+  }
+
+  private static void printReport(List<RunResult> results) {
+    System.out.println("=== 再送結果 ===");
+    System.out.printf("%-24s %9s %7s %10s %9s %9s %9s %9s %9s %12s %6s %10s %7s%n", "run", "requests", "errors",
+	"req/s", "p50(ms)", "p90(ms)", "p99(ms)", "p99.9(ms)", "max(ms)", "alloc/req", "gc", "gcPause(ms)", "pinned");
+    for (RunResult result : results) {
+      long[] latencies = result.latenciesNanos();
+      double seconds = result.elapsedNanos() / 1e9;
+      StringBuilder line = new StringBuilder(String.format("%-24s %9d %7d %10.1f", result.label(), latencies.length,
+	  result.errors(), latencies.length / seconds));
+      for (double percentile : PERCENTILES) {
+	line.append(String.format(" %9.2f", percentile(latencies, percentile) / 1e6));
+      }
+      line.append(String.format(" %9.2f", latencies.length == 0 ? 0 : latencies[latencies.length - 1] / 1e6));
+      line.append(String.format(" %12.0f %6.0f %10.1f", result.allocatedBytes() / Math.max(1, latencies.length),
+	  result.gcCount(), result.gcPauseSeconds() * 1000));
+      line.append(String.format(" %7.0f", result.pinnedCount()));
+      System.out.println(line);
+    }
+    // ステータス別件数（-1 は接続エラー等で応答なし）
+    for (RunResult result : results) {
+      System.out.printf("%-24s status %s%n", result.label(), result.statusCounts());
+    }
+  }
+
+  private static double percentile(long[] sorted, double percentile) {
+    if (sorted.length == 0) {
+      return 0;
+    }
+    int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+    return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+  }
+
+  private String option(String key, String defaultValue) {
+    return options.getOrDefault(key, defaultValue);
+  }
+
+  private static String stripTrailingSlash(String value) {
+    return value.endsWith("/") ? value.substring(0, value.length() - 1) : value;
+  }
+
+  /**
+   * 遅延（ナノ秒）を蓄積する. ワーカーと HttpClient のコールバックから並行に呼ばれる.
+   */
+  private static final class LatencyRecorder {
+    private final LongAdder errors = new LongAdder();
+    private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+    private long[] values = new long[1 << 16];
+    private int size;
+
+    synchronized void add(long latency) {
+      if (size == values.length) {
+	values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = latency;
+    }
+
+    Map<Integer, Long> statusCounts() {
+      Map<Integer, Long> counts = new TreeMap<>();
+      statuses.forEach((status, count) -> counts.put(status, count.sum()));
+      return counts;
+    }
+
+    synchronized long[] sorted() {
+      long[] copy = Arrays.copyOf(values, size);
+      Arrays.sort(copy);
+      return copy;
+    }
+  }
+}
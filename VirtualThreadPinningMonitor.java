@@ -0,0 +1,67 @@
+package demo.api.jfr;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * 仮想スレッドがキャリアを固定（pinning）した場合に警告ログとメトリクスを出す.
+ *
+ * <p>
+ * JFR の {@code jdk.VirtualThreadPinned} を購読する. {@code spring.threads.virtual.enabled=true} の場合のみ有効.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadPinningMonitor {
+
+  private static final Logger logger = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+
+  private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+  /** ログに出すスタックフレーム数. */
+  private static final int MAX_FRAMES = 8;
+
+  private final RecordingStream stream;
+
+  public VirtualThreadPinningMonitor(@Value("${demo.jfr.pinned-threshold:20ms}") Duration threshold,
+      MeterRegistry registry) {
+    Counter pinnedCounter = Counter.builder("demo.vthread.pinned")
+	.description("Virtual thread pinned events longer than demo.jfr.pinned-threshold").register(registry);
+
+    stream = new RecordingStream();
+    stream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+    stream.onEvent(PINNED_EVENT, event -> {
+      pinnedCounter.increment();
+      logger.warn("Virtual thread pinned for {}ms at {}", event.getDuration().toMillis(), topFrames(event));
+    });
+    stream.startAsync();
+    logger.info("Virtual thread pinning monitor started: threshold={}", threshold);
+  }
+
+  private static String topFrames(RecordedEvent event) {
+    if (event.getStackTrace() == null) {
+      return "(no stack trace)";
+    }
+    List<RecordedFrame> frames = event.getStackTrace().getFrames();
+    return frames.stream().limit(MAX_FRAMES)
+	.map(frame -> frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":"
+	    + frame.getLineNumber())
+	.collect(Collectors.joining(" <- "));
+  }
+
+  @PreDestroy
+  public void close() {
+    stream.close();
+  }
+}
@@ -0,0 +1,59 @@
+#!/usr/bin/env bash
+# プラットフォームスレッドと仮想スレッドの比較ベンチマーク（同期/非同期アペンダー × ログ出力あり／なし）
+#
+# 使い方: ./bench-threads.sh <app.jar> <replayer-classpath> [concurrency] [duration]
+#   app.jar             ビルド済みアプリ（H2 を含むこと）
+#   replayer-classpath  demo.api.replay.TrafficReplayer と Jackson を含むクラスパス
+# 結果は bench_output.txt に追記する.
+set -euo pipefail
+
+APP_JAR=${1:?app.jar}
+REPLAYER_CP=${2:?replayer classpath}
+CONCURRENCY=${3:-1000}
+DURATION=${4:-60}
+PORT=${PORT:-8080}
+CAPTURE=${CAPTURE:-test_request.json}
+
+# 起動中のアプリ（exit や set -e による中断時も EXIT トラップで停止し、ポートを解放する）
+APP_PID=
+
+stop_app() {
+  if [ -n "$APP_PID" ]; then
+    kill "$APP_PID" 2>/dev/null || true
+    wait "$APP_PID" 2>/dev/null || true
+    APP_PID=
+  fi
+}
+trap stop_app EXIT
+
+run() {
+  local label=$1 profiles=$2
+  java -jar "$APP_JAR" --server.port="$PORT" --spring.profiles.active="$profiles" > "app-$label.log" 2>&1 &
+  APP_PID=$!
+
+  # 起動待ち（タイムアウトした場合は停止したアプリに再送しないよう終了する）
+  local ready=false
+  for _ in $(seq 1 120); do
+    if curl -fs "http://localhost:$PORT/demo/actuator/health" > /dev/null; then
+      ready=true
+      break
+    fi
+    sleep 1
+  done
+  if [ "$ready" != true ]; then
+    echo "アプリが起動しませんでした: $label (app-$label.log を参照)" >&2
+    exit 1
+  fi
+
+  java -cp "$REPLAYER_CP" demo.api.replay.TrafficReplayer \
+    --target="http://localhost:$PORT" --capture="$CAPTURE" --concurrency="$CONCURRENCY" \
+    --duration="$DURATION" --compare-logging=true --label="$label-" | tee -a bench_output.txt
+
+  stop_app
+}
+
+# スレッドモデルとアペンダー構成を独立に比較するため、両方の組み合わせで実行する
+run platform-sync replay
+run virtual-sync replay,vthreads
+run platform-async replay,async-log
+run virtual-async replay,vthreads,async-log